@@ -0,0 +1,257 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Startup cost of the lambda / method reference examples in LambdaExpression.
+ *
+ * Every lambda expression and method reference is an invokedynamic call site.
+ * The first time a call site runs, the JVM calls LambdaMetafactory (bootstrap method), which spins a
+ * hidden class implementing the functional interface and links the call site to it. Only the later calls are cheap.
+ * For a job that finishes in seconds this linkage is a visible part of the total time.
+ *
+ * Modes:
+ *   java LambdaStartup           :: time to first result and first call (linkage) vs second call cost per call site
+ *   java LambdaStartup compare   :: launches child JVMs and compares cold, default and fast-start (AppCDS) startup
+ *
+ * Fast-start profile (what compare mode does, JDK 16+ needed to archive lambda proxy classes and lambda form invokers).
+ * AppCDS archives application classes from JAR files only, so package the classes first:
+ *   jar cf learn_j8.jar -C bin .
+ *   java -XX:DumpLoadedClassList=lambda.classlist -cp learn_j8.jar LambdaStartup                          //training run
+ *   java -Xshare:dump -XX:SharedClassListFile=lambda.classlist -XX:SharedArchiveFile=lambda.jsa -cp learn_j8.jar
+ *   java -XX:SharedArchiveFile=lambda.jsa -cp learn_j8.jar LambdaStartup                                 //fast start
+ *   java -cp learn_j8.jar LambdaStartup compare
+ *
+ * https://cr.openjdk.java.net/~briangoetz/lambda/lambda-translation.html
+ * https://docs.oracle.com/en/java/javase/17/vm/class-data-sharing.html
+ */
+public class LambdaStartup {
+
+	/**
+	 * One row per call site in LambdaExpression.main / checkCurrentInstancewithInstaceOfLambda, same linkage shape.
+	 * Only the bodies differ: no console output and no deprecated Integer(String) constructor.
+	 */
+	private static final String[] SITES = {
+		"Increment (int x) -> x = x + 1",
+		"PrintSysTime () -> ... new Date()",
+		"Comparator<String> (s1, s2) -> s1.length() - s2.length()",
+		"ThrowException () -> { throw new IOException(); }",
+		"Consumer<Integer> x -> ... varOutsideLamda + x (capturing)",
+		"PrintSysTime () -> { this == INSTANCE } (captures this)",
+		"Consumer<Integer> (x) -> staticMethod(x)",
+		"Consumer<Integer> LambdaStartup :: staticMethod",
+		"Function<String, StringBuilder> x -> new StringBuilder(x)",
+		"Function<String, StringBuilder> StringBuilder :: new",
+		"Consumer<Integer> x -> SINK.add(x)",
+		"Consumer<Integer> sink :: add (bound receiver)",
+		"Function<String, String> x -> x.toUpperCase()",
+		"Function<String, String> String :: toUpperCase"
+	};
+
+	private static final int COMPARE_RUNS = 5;
+
+	private static final String FIRST_RESULT = "Time to first result (ms since JVM start): ";
+
+	private static final List<Object> SINK = new ArrayList<Object>();
+
+	private static Object blackhole;
+
+	public static void main(String[] args) throws Exception {
+		if(args.length > 0 && args[0].equals("compare")) {
+			compare();
+		} else {
+			linkage();
+		}
+	}
+
+
+	/**
+	 * First run of a site = bootstrap + class spinning + linkage + capture; second run = capture only
+	 * (the same constant instance for non-capturing sites, an allocation for capturing ones).
+	 * Site 0 additionally pays the one time initialization of the java.lang.invoke infrastructure.
+	 */
+	private static void linkage() throws Exception {
+		LambdaStartup INSTANCE = new LambdaStartup();
+		String varOutsideLamda = "Iteration: ";
+		List<Object> sink = new ArrayList<Object>();
+
+		long startNanos = System.nanoTime();
+		Object firstResult = apply(INSTANCE.runSite(0, INSTANCE, varOutsideLamda, sink));
+		long firstResultNanos = System.nanoTime();
+		long uptime = ManagementFactory.getRuntimeMXBean().getUptime(); //loads JMX, so only after the first result
+		System.out.println("First result: " + firstResult);
+		System.out.println(FIRST_RESULT + uptime);
+		System.out.println("  of which first lambda (bootstrap + linkage): " + (firstResultNanos - startNanos) / 1000 + " us");
+
+		long totalFirst = 0;
+		long totalSecond = 0;
+		for(int site = 1; site < SITES.length; site++) {
+			long t0 = System.nanoTime();
+			blackhole = INSTANCE.runSite(site, INSTANCE, varOutsideLamda, sink);
+			long t1 = System.nanoTime();
+			blackhole = INSTANCE.runSite(site, INSTANCE, varOutsideLamda, sink);
+			long t2 = System.nanoTime();
+			totalFirst += t1 - t0;
+			totalSecond += t2 - t1;
+			System.out.println(String.format("%-60s first: %6d us, second: %6d ns", SITES[site], (t1 - t0) / 1000, t2 - t1));
+		}
+		System.out.println("Linkage of " + (SITES.length - 1) + " sites (after site 0): " + totalFirst / 1000 + " us, already linked: " + totalSecond + " ns");
+	}
+
+	/**
+	 * Each case is a separate invokedynamic call site, the harness itself uses none (it would link them first).
+	 * The captured values are parameters, not compile time constants, so javac cannot fold them into the lambda body.
+	 */
+	private Object runSite(int site, final LambdaStartup INSTANCE, final String varOutsideLamda, final List<Object> sink) {
+		switch(site) {
+			case 0:  return (Increment) (int x) -> x = x + 1;
+			case 1:  return (PrintSysTime) () -> blackhole = new java.util.Date();
+			case 2:  return (Comparator<String>) (String s1, String s2) -> s1.length() - s2.length();
+			case 3:  return (ThrowException) () -> { throw new IOException(); };
+			case 4:  return (Consumer<Integer>) x -> { blackhole = varOutsideLamda + x; };
+			case 5:  return (PrintSysTime) () -> {
+						if(this == INSTANCE) {
+							blackhole = INSTANCE;
+						}
+					};
+			case 6:  return (Consumer<Integer>) (x) -> staticMethod(x);
+			case 7:  return (Consumer<Integer>) LambdaStartup :: staticMethod;
+			case 8:  return (Function<String, StringBuilder>) x -> new StringBuilder(x);
+			case 9:  return (Function<String, StringBuilder>) StringBuilder :: new;
+			case 10: return (Consumer<Integer>) x -> SINK.add(x);
+			case 11: return (Consumer<Integer>) sink :: add;
+			case 12: return (Function<String, String>) x -> x.toUpperCase();
+			case 13: return (Function<String, String>) String :: toUpperCase;
+			default: throw new IllegalArgumentException("No call site: " + site);
+		}
+	}
+
+	private static Object apply(Object lambda) {
+		Comparator<String> comparator = new Comparator<String>() { //Not a lambda, keeps site 0 the first indy site
+			@Override
+			public int compare(String s1, String s2) {
+				return s1.length() - s2.length();
+			}
+		};
+		String strArray [] = {"111", "1", "11"};
+		Arrays.sort(strArray, comparator);
+		((Increment) lambda).incrementByOne(1);
+		return Arrays.toString(strArray);
+	}
+
+	private static void staticMethod(int x) {
+		blackhole = x;
+	}
+
+
+	/**
+	 * Wall clock time of complete child JVMs (launch to exit) and their reported time to first result.
+	 */
+	private static void compare() throws Exception {
+		String javaCmd = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+		String classPath = System.getProperty("java.class.path");
+		String specVersion = System.getProperty("java.specification.version");
+
+		//{name, JVM options...}
+		List<String[]> profiles = new ArrayList<String[]>();
+		profiles.add(new String[] {"cold (-Xshare:off)", "-Xshare:off"});
+		profiles.add(new String[] {"default CDS", "-Xshare:auto"});
+
+		File tmpDir = null;
+		try {
+			if(specVersion.startsWith("1.") || Integer.parseInt(specVersion) < 16) {
+				System.out.println("Java " + specVersion + ": archiving lambda proxy classes needs JDK 16+, fast-start profile skipped.");
+			} else if(!isJarClassPath(classPath)) {
+				System.out.println("Class path '" + classPath + "' is not a JAR (AppCDS archives classes from JARs only), fast-start profile skipped.");
+			} else {
+				//Own directory per run, concurrent compare runs must not overwrite each other's archive
+				tmpDir = Files.createTempDirectory("LambdaStartup").toFile();
+				File classList = new File(tmpDir, "LambdaStartup.classlist");
+				File archive = new File(tmpDir, "LambdaStartup.jsa");
+
+				//Training run: records loaded classes plus @lambda-proxy and @lambda-form-invoker entries
+				run(javaCmd, "-XX:DumpLoadedClassList=" + classList, "-cp", classPath, "LambdaStartup");
+				//Static archive from the class list, lambda proxies and lambda forms are pre-generated and pre-linked
+				run(javaCmd, "-Xshare:dump", "-XX:SharedClassListFile=" + classList, "-XX:SharedArchiveFile=" + archive, "-cp", classPath);
+				//-Xshare:on: an archive that fails validation must fail the run, not silently fall back to default CDS
+				profiles.add(new String[] {"fast-start (AppCDS)", "-Xshare:on", "-XX:SharedArchiveFile=" + archive});
+			}
+
+			for(String[] profile : profiles) {
+				List<String> command = new ArrayList<String>();
+				command.add(javaCmd);
+				command.addAll(Arrays.asList(profile).subList(1, profile.length));
+				command.addAll(Arrays.asList("-cp", classPath, "LambdaStartup"));
+
+				long totalWall = 0;
+				long totalFirstResult = 0;
+				for(int r = 0; r < COMPARE_RUNS; r++) {
+					long start = System.nanoTime();
+					String output = run(command.toArray(new String[command.size()]));
+					totalWall += System.nanoTime() - start;
+					totalFirstResult += parseFirstResult(output);
+				}
+				System.out.println(String.format("%-22s wall: %5d ms, first result: %5d ms (avg of %d runs)",
+						profile[0], totalWall / COMPARE_RUNS / 1000000, totalFirstResult / COMPARE_RUNS, COMPARE_RUNS));
+			}
+		} finally {
+			if(tmpDir != null) {
+				deleteDirectory(tmpDir);
+			}
+		}
+	}
+
+	private static void deleteDirectory(File dir) {
+		File[] files = dir.listFiles();
+		if(files != null) {
+			for(File file : files) {
+				file.setWritable(true); //the dumped archive is read only
+				file.delete();
+			}
+		}
+		dir.delete();
+	}
+
+	private static boolean isJarClassPath(String classPath) {
+		for(String entry : classPath.split(File.pathSeparator)) {
+			if(!entry.endsWith(".jar")) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static String run(String... command) throws IOException, InterruptedException {
+		Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+		StringBuilder output = new StringBuilder();
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+			String line;
+			while((line = reader.readLine()) != null) {
+				output.append(line).append('\n');
+			}
+		}
+		int exitCode = process.waitFor();
+		if(exitCode != 0) {
+			throw new IllegalStateException("Exit code " + exitCode + " for " + Arrays.toString(command) + "\n" + output);
+		}
+		return output.toString();
+	}
+
+	private static long parseFirstResult(String output) {
+		for(String line : output.split("\n")) {
+			if(line.startsWith(FIRST_RESULT)) {
+				return Long.parseLong(line.substring(FIRST_RESULT.length()).trim());
+			}
+		}
+		throw new IllegalStateException("No '" + FIRST_RESULT + "' in output:\n" + output);
+	}
+}
@@ -0,0 +1,313 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.LongSummaryStatistics;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+
+/**
+ * "Sum quantity where type == ONLINE" (see StreamExplored) over primitive columns instead of a Stream<PurchaseOrder>.
+ *
+ * The stream pipeline chases one PurchaseOrder reference per element and calls two lambdas on it.
+ * Once the data sits in primitive arrays (byte ordinal column + long quantity column), the same filter-and-sum
+ * is a plain counted loop over contiguous memory: no object per element, no lambda calls, no boxing.
+ *
+ * This is a scalar columnar kernel. jdk.incubator.vector (JDK 16+, --add-modules) is not available on the Java 8 JRE
+ * this project targets, and C2 on Java 8 does not auto-vectorize reductions, so the speed up comes from the data layout only.
+ *
+ * https://docs.oracle.com/javase/8/docs/api/java/util/LongSummaryStatistics.html
+ * https://docs.oracle.com/javase/tutorial/essential/concurrency/forkjoin.html
+ */
+public class PurchaseOrderAggregation {
+
+	public static final int SEQUENTIAL_THRESHOLD = 1 << 16;
+
+	public static void main(String[] args) {
+
+		//Building up source of stream (same data as StreamExplored)
+		List<PurchaseOrder> listOfPOs = new ArrayList<PurchaseOrder>();
+		for(int i = 1; i <= 10000; i++) {
+			if(i % 2 == 0) {
+				listOfPOs.add(new PurchaseOrder(PURCHASE_TYPE.ONLINE, 1, i *10));
+			} else {
+				listOfPOs.add(new PurchaseOrder(PURCHASE_TYPE.DIRECT, 1, i *10));
+			}
+		}
+
+		//Row to column: done once, every query after this works on the arrays
+		byte[] types = new byte[listOfPOs.size()];
+		long[] quantities = new long[listOfPOs.size()];
+		long[] totalPrices = new long[listOfPOs.size()];
+		for(int i = 0; i < listOfPOs.size(); i++) {
+			PurchaseOrder po = listOfPOs.get(i);
+			types[i] = (byte) po.getPurchaseType().ordinal();
+			quantities[i] = po.getQuantity();
+			totalPrices[i] = po.getTotalPrice();
+		}
+		byte online = (byte) PURCHASE_TYPE.ONLINE.ordinal();
+
+
+		long totalOnlineQuantity = listOfPOs.stream()
+				.filter(po -> po.getPurchaseType() == PURCHASE_TYPE.ONLINE)
+				.mapToLong(po -> po.getQuantity())
+				.sum();
+		System.out.println("Stream  total online quantity: " + totalOnlineQuantity);
+		System.out.println("Kernel  total online quantity: " + sum(types, quantities, online));
+
+
+		/*
+		 * Results must match the stream pipeline exactly (long arithmetic, so no rounding differences; overflow wraps the same way).
+		 */
+		LongSummaryStatistics expected = listOfPOs.stream()
+				.filter(po -> po.getPurchaseType() == PURCHASE_TYPE.ONLINE)
+				.mapToLong(po -> po.getTotalPrice())
+				.summaryStatistics();
+		Stats actual = aggregate(types, totalPrices, online);
+		//10000 rows are below SEQUENTIAL_THRESHOLD, so a small threshold is passed to really split (and combine)
+		Stats actualParallel = ForkJoinPool.commonPool().invoke(new AggregateTask(types, totalPrices, online, 0, types.length, 256));
+		System.out.println("Stream   : " + expected);
+		System.out.println("Kernel   : " + actual);
+		System.out.println("Parallel : " + actualParallel);
+		System.out.println("Matches  : " + (actual.matches(expected) && actualParallel.matches(expected)));
+
+
+		/*
+		 * ONLINE only in the last quarter: most of the splits have no match at all,
+		 * their min/max sentinels (Long.MAX_VALUE / Long.MIN_VALUE) must not leak through combine().
+		 */
+		List<PurchaseOrder> lateOnlinePOs = new ArrayList<PurchaseOrder>();
+		byte[] lateTypes = new byte[10000];
+		long[] lateTotalPrices = new long[10000];
+		for(int i = 0; i < 10000; i++) {
+			PURCHASE_TYPE pType = i < 7500 ? PURCHASE_TYPE.DIRECT : PURCHASE_TYPE.ONLINE;
+			lateOnlinePOs.add(new PurchaseOrder(pType, 1, i * 10));
+			lateTypes[i] = (byte) pType.ordinal();
+			lateTotalPrices[i] = i * 10;
+		}
+		LongSummaryStatistics lateExpected = lateOnlinePOs.stream()
+				.filter(po -> po.getPurchaseType() == PURCHASE_TYPE.ONLINE)
+				.mapToLong(po -> po.getTotalPrice())
+				.summaryStatistics();
+		Stats lateParallel = ForkJoinPool.commonPool().invoke(new AggregateTask(lateTypes, lateTotalPrices, online, 0, lateTypes.length, 256));
+		System.out.println("Stream   (ONLINE in last quarter) : " + lateExpected);
+		System.out.println("Parallel (ONLINE in last quarter) : " + lateParallel);
+		System.out.println("Matches  : " + lateParallel.matches(lateExpected));
+
+
+		/*
+		 * Rough timing only (no JMH); run a few rounds so that both versions get JIT compiled.
+		 */
+		for(int round = 1; round <= 5; round++) {
+			long startStream = System.nanoTime();
+			long streamResult = 0;
+			for(int r = 0; r < 1000; r++) {
+				streamResult += listOfPOs.stream()
+						.filter(po -> po.getPurchaseType() == PURCHASE_TYPE.ONLINE)
+						.mapToLong(po -> po.getQuantity())
+						.sum();
+			}
+			long endStream = System.nanoTime();
+
+			long startKernel = System.nanoTime();
+			long kernelResult = 0;
+			for(int r = 0; r < 1000; r++) {
+				kernelResult += sum(types, quantities, online);
+			}
+			long endKernel = System.nanoTime();
+
+			System.out.println("Round " + round + " :: stream " + (endStream - startStream) / 1000 + " us, kernel "
+					+ (endKernel - startKernel) / 1000 + " us, results equal: " + (streamResult == kernelResult));
+		}
+	}
+
+
+	/**
+	 * Sum of values[i] where types[i] == type.
+	 */
+	public static long sum(byte[] types, long[] values, byte type) {
+		return sum(types, values, type, 0, types.length);
+	}
+
+	public static long sum(byte[] types, long[] values, byte type, int from, int to) {
+		checkRange(types, values, from, to);
+		long s = 0;
+		for(int i = from; i < to; i++) {
+			s += types[i] == type ? values[i] : 0;
+		}
+		return s;
+	}
+
+	/**
+	 * Number of elements where types[i] == type.
+	 */
+	public static long count(byte[] types, byte type) {
+		return count(types, type, 0, types.length);
+	}
+
+	public static long count(byte[] types, byte type, int from, int to) {
+		checkRange(types, from, to);
+		long c = 0;
+		for(int i = from; i < to; i++) {
+			c += types[i] == type ? 1 : 0;
+		}
+		return c;
+	}
+
+	/**
+	 * Minimum of values[i] where types[i] == type; Long.MAX_VALUE if nothing matches (same as LongSummaryStatistics.getMin()).
+	 */
+	public static long min(byte[] types, long[] values, byte type) {
+		return min(types, values, type, 0, types.length);
+	}
+
+	public static long min(byte[] types, long[] values, byte type, int from, int to) {
+		checkRange(types, values, from, to);
+		long m = Long.MAX_VALUE;
+		for(int i = from; i < to; i++) {
+			m = Math.min(m, types[i] == type ? values[i] : Long.MAX_VALUE);
+		}
+		return m;
+	}
+
+	/**
+	 * Maximum of values[i] where types[i] == type; Long.MIN_VALUE if nothing matches (same as LongSummaryStatistics.getMax()).
+	 */
+	public static long max(byte[] types, long[] values, byte type) {
+		return max(types, values, type, 0, types.length);
+	}
+
+	public static long max(byte[] types, long[] values, byte type, int from, int to) {
+		checkRange(types, values, from, to);
+		long m = Long.MIN_VALUE;
+		for(int i = from; i < to; i++) {
+			m = Math.max(m, types[i] == type ? values[i] : Long.MIN_VALUE);
+		}
+		return m;
+	}
+
+	/**
+	 * Sum, count, min and max in a single pass over [from, to).
+	 */
+	public static Stats aggregate(byte[] types, long[] values, byte type) {
+		return aggregate(types, values, type, 0, types.length);
+	}
+
+	public static Stats aggregate(byte[] types, long[] values, byte type, int from, int to) {
+		checkRange(types, values, from, to);
+		long sum = 0, count = 0, min = Long.MAX_VALUE, max = Long.MIN_VALUE;
+		for(int i = from; i < to; i++) {
+			boolean match = types[i] == type;
+			long v = values[i];
+			sum += match ? v : 0;
+			count += match ? 1 : 0;
+			min = Math.min(min, match ? v : Long.MAX_VALUE);
+			max = Math.max(max, match ? v : Long.MIN_VALUE);
+		}
+		return new Stats(sum, count, min, max);
+	}
+
+	private static void checkRange(byte[] types, long[] values, int from, int to) {
+		if(types.length != values.length) {
+			throw new IllegalArgumentException("Column lengths differ: " + types.length + " != " + values.length);
+		}
+		checkRange(types, from, to);
+	}
+
+	private static void checkRange(byte[] types, int from, int to) {
+		if(from < 0 || to > types.length || from > to) {
+			throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + types.length);
+		}
+	}
+
+
+	/**
+	 * Result of aggregate(); partial results of a fork/join split are merged with combine().
+	 * sum/count/min/max are associative, so the split points do not change the result.
+	 */
+	public static final class Stats {
+		private final long sum;
+		private final long count;
+		private final long min;
+		private final long max;
+
+		public Stats(long sum, long count, long min, long max) {
+			this.sum = sum;
+			this.count = count;
+			this.min = min;
+			this.max = max;
+		}
+
+		public Stats combine(Stats other) {
+			return new Stats(sum + other.sum, count + other.count, Math.min(min, other.min), Math.max(max, other.max));
+		}
+
+		public boolean matches(LongSummaryStatistics stats) {
+			return sum == stats.getSum() && count == stats.getCount() && min == stats.getMin() && max == stats.getMax();
+		}
+
+		public long getSum() {
+			return sum;
+		}
+		public long getCount() {
+			return count;
+		}
+		public long getMin() {
+			return min;
+		}
+		public long getMax() {
+			return max;
+		}
+
+		@Override
+		public String toString() {
+			return "Stats [sum=" + sum + ", count=" + count + ", min=" + min + ", max=" + max + "]";
+		}
+	}
+
+
+	/**
+	 * Splits [from, to) in halves until it is not bigger than threshold, then runs the sequential kernel.
+	 *
+	 * ForkJoinPool.commonPool().invoke(new AggregateTask(types, values, type, 0, types.length));
+	 */
+	public static class AggregateTask extends RecursiveTask<Stats> {
+		private static final long serialVersionUID = 1L;
+
+		private final byte[] types;
+		private final long[] values;
+		private final byte type;
+		private final int from;
+		private final int to;
+		private final int threshold;
+
+		public AggregateTask(byte[] types, long[] values, byte type, int from, int to) {
+			this(types, values, type, from, to, SEQUENTIAL_THRESHOLD);
+		}
+
+		public AggregateTask(byte[] types, long[] values, byte type, int from, int to, int threshold) {
+			checkRange(types, values, from, to);
+			if(threshold < 1) {
+				throw new IllegalArgumentException("threshold: " + threshold);
+			}
+			this.types = types;
+			this.values = values;
+			this.type = type;
+			this.from = from;
+			this.to = to;
+			this.threshold = threshold;
+		}
+
+		@Override
+		protected Stats compute() {
+			if(to - from <= threshold) {
+				return aggregate(types, values, type, from, to);
+			}
+			int mid = (from + to) >>> 1;
+			AggregateTask left = new AggregateTask(types, values, type, from, mid, threshold);
+			AggregateTask right = new AggregateTask(types, values, type, mid, to, threshold);
+			left.fork();
+			Stats rightResult = right.compute();
+			return left.join().combine(rightResult);
+		}
+	}
+}